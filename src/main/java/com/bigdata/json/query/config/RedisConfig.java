@@ -0,0 +1,27 @@
+package com.bigdata.json.query.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+@Configuration
+public class RedisConfig {
+
+    /**
+     * Template used for plan storage: String keys / hash fields, raw byte[] values,
+     * so PlanCodec controls the exact bytes that end up in Redis.
+     */
+    @Bean
+    public RedisTemplate<String, byte[]> planBinaryRedisTemplate(RedisConnectionFactory cf) {
+        RedisTemplate<String, byte[]> rt = new RedisTemplate<>();
+        rt.setConnectionFactory(cf);
+        rt.setKeySerializer(StringRedisSerializer.UTF_8);
+        rt.setHashKeySerializer(StringRedisSerializer.UTF_8);
+        rt.setValueSerializer(RedisSerializer.byteArray());
+        rt.setHashValueSerializer(RedisSerializer.byteArray());
+        return rt;
+    }
+}
@@ -1,39 +1,33 @@
 package com.bigdata.json.query.controller;
 
+import com.bigdata.json.query.service.PlanSchemaValidator;
 import com.bigdata.json.query.service.PlanService;
+import com.bigdata.json.query.service.PlanValidationException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.networknt.schema.JsonSchema;
-import com.networknt.schema.JsonSchemaFactory;
-import com.networknt.schema.SpecVersion;
-import com.networknt.schema.ValidationMessage;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/plans")
 public class PlanController {
 
     private final PlanService planService;
-    private final JsonSchema schema;
+    private final PlanSchemaValidator validator;
     private final ObjectMapper objectMapper;
 
-    public PlanController(PlanService planService) throws Exception {
+    public PlanController(PlanService planService, PlanSchemaValidator validator) {
         this.planService = planService;
+        this.validator = validator;
         this.objectMapper = new ObjectMapper();
-
-        // Load the JSON schema from the classpath resource: schemas/plan-schema.json
-        try (InputStream schemaStream =
-                     getClass().getResourceAsStream("/schemas/plan-schema.json")) {
-            JsonSchemaFactory factory = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V201909);
-            this.schema = factory.getSchema(schemaStream);
-        }
     }
 
     /**
@@ -49,7 +43,7 @@ public class PlanController {
             JsonNode jsonNode = objectMapper.readTree(jsonPayload);
 
             // Validate against JSON schema
-            Set<ValidationMessage> validationErrors = schema.validate(jsonNode);
+            List<String> validationErrors = validator.validate(jsonNode);
             if (!validationErrors.isEmpty()) {
                 // Return 400 with details
                 return ResponseEntity.badRequest()
@@ -64,14 +58,15 @@ public class PlanController {
                         .body("objectId is missing or empty in JSON");
             }
 
-            // Compute ETag for the incoming JSON payload
-            String incomingEtag = generateEtag(jsonPayload);
+            // Compute ETag for the incoming JSON payload, in the compact form it is stored in
+            String canonicalJson = planService.normalize(jsonNode);
+            String incomingEtag = generateEtag(canonicalJson);
 
             // Check if a plan with the given objectId already exists
             String existingJson = planService.getPlan(objectId);
             if (existingJson == null) {
                 // No existing resource: create new and return 201 Created
-                planService.savePlan(objectId, jsonPayload);
+                planService.savePlan(objectId, canonicalJson);
                 return ResponseEntity.status(HttpStatus.CREATED)
                         .header("Location", "/api/plans/" + objectId)
                         .eTag(incomingEtag)
@@ -85,7 +80,7 @@ public class PlanController {
                             .body("Plan already exists with the same content.");
                 } else {
                     // Different content: overwrite the existing resource
-                    planService.savePlan(objectId, jsonPayload);
+                    planService.savePlan(objectId, canonicalJson);
                     return ResponseEntity.status(HttpStatus.CREATED)
                             .header("Location", "/api/plans/" + objectId)
                             .eTag(incomingEtag)
@@ -100,22 +95,71 @@ public class PlanController {
 
     /**
      * READ a Plan (GET /api/plans/{objectId})
-     * Supports conditional read with ETag/If-None-Match
+     * Supports conditional read with ETag/If-None-Match.
+     * Optional ?fields=a,b.c returns only those fields (sparse fieldset).
      */
     @GetMapping("/{objectId}")
     public ResponseEntity<?> getPlan(
             @PathVariable String objectId,
+            @RequestParam(value = "fields", required = false) String fields,
             @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
 
+        if (fields != null) {
+            return getPlanPart(objectId, "", fields, ifNoneMatch);
+        }
+
         // Fetch from Redis
         String planJson = planService.getPlan(objectId);
         if (planJson == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body("No plan found with objectId = " + objectId);
         }
+        return conditionalOk(planJson, ifNoneMatch);
+    }
+
+    /**
+     * READ part of a Plan (GET /api/plans/{objectId}/{field}/{childObjectId}/...)
+     * e.g. /api/plans/{id}/planCostShares or /api/plans/{id}/linkedPlanServices/{lpsId}
+     * Path segments are field names, or objectIds inside arrays.
+     * Served by a streaming parser; the ETag covers only the returned sub-resource.
+     */
+    @GetMapping("/{objectId}/{*subPath}")
+    public ResponseEntity<?> getPlanPart(
+            @PathVariable String objectId,
+            @PathVariable String subPath,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
 
-        // Compute the ETag from the stored JSON
-        String currentEtag = generateEtag(planJson);
+        List<String> path = Arrays.stream(subPath.split("/"))
+                .filter(seg -> !seg.isBlank())
+                .toList();
+        Set<String> fieldSet = fields == null ? Set.of() : Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(f -> !f.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        try {
+            String partJson = planService.getPlanPart(objectId, path, fieldSet);
+            if (partJson == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body("No resource found at /api/plans/" + objectId + subPath);
+            }
+            return conditionalOk(partJson, ifNoneMatch);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body("Invalid fields parameter: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to read plan: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 304 if the client already has this representation, otherwise 200 with ETag.
+     */
+    private ResponseEntity<?> conditionalOk(String json, String ifNoneMatch) {
+        // Compute the ETag from the JSON being returned
+        String currentEtag = generateEtag(json);
 
         // If the client sends If-None-Match = currentEtag, respond 304
         if (ifNoneMatch != null && ifNoneMatch.equals(currentEtag)) {
@@ -125,7 +169,7 @@ public class PlanController {
         // Otherwise respond with 200 and the content
         return ResponseEntity.ok()
                 .eTag(currentEtag)
-                .body(planJson);
+                .body(json);
     }
 
     /**
@@ -160,20 +204,17 @@ public class PlanController {
                 return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
                         .body("ETag mismatch: resource has been modified");
             }
-            // Apply Patch
+            // Apply Patch (validated against the schema before it is persisted)
             String updatedJson = planService.patchPlan(objectId, patchPayload);
-            JsonNode mergedNode = objectMapper.readTree(updatedJson);
-            Set<ValidationMessage> validationErrors = schema.validate(mergedNode);
-            if (!validationErrors.isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body("JSON Schema validation failed after patch: " + validationErrors);
-            }
             // Check if content is actually changed after patch
             String newEtag = generateEtag(updatedJson);
             if(newEtag.equals(currentEtag)){
                 return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
             }
             return ResponseEntity.ok().eTag(newEtag).body(updatedJson);
+        } catch (PlanValidationException ex) {
+            return ResponseEntity.badRequest()
+                    .body("JSON Schema validation failed after patch: " + ex.getErrors());
         } catch (Exception ex) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body("Failed to apply patch: " + ex.getMessage());
@@ -0,0 +1,278 @@
+package com.bigdata.json.query.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts plan JSON to / from the bytes kept in Redis.
+ *
+ * Encoded layout:  [0x00][format][compression][payload]
+ * where an LZ4 payload is prefixed with the 4-byte uncompressed length.
+ * JSON text can never start with 0x00, so anything without that marker is a
+ * legacy (plain UTF-8 JSON) entry and old and new entries can coexist.
+ *
+ * Every read returns compact JSON, whatever the stored encoding, so ETags
+ * don't change when an entry is re-encoded. Plans stored pretty-printed before
+ * this codec existed are compacted on read, so their ETag changes once.
+ */
+@Component
+public class PlanCodec {
+
+    public enum Format {
+        JSON(1), SMILE(2), CBOR(3);
+
+        final byte id;
+        Format(int id) { this.id = (byte) id; }
+
+        static Format of(byte id) {
+            for (Format f : values()) if (f.id == id) return f;
+            throw new IllegalStateException("Unknown plan storage format id " + id);
+        }
+    }
+
+    public enum Compression {
+        NONE(0), LZ4(1);
+
+        final byte id;
+        Compression(int id) { this.id = (byte) id; }
+
+        static Compression of(byte id) {
+            for (Compression c : values()) if (c.id == id) return c;
+            throw new IllegalStateException("Unknown plan storage compression id " + id);
+        }
+    }
+
+    private static final byte MAGIC  = 0x00;
+    private static final int  HEADER = 3;
+
+    /* sanity caps for the uncompressed length read back from Redis */
+    static final int MAX_PLAN_BYTES = 64 * 1024 * 1024;
+    private static final int LZ4_MAX_RATIO = 255;
+
+    private final Format format;
+    private final Compression compression;
+
+    private final JsonFactory  jsonFactory  = new JsonFactory();
+    private final SmileFactory smileFactory = new SmileFactory();
+    private final CBORFactory  cborFactory  = new CBORFactory();
+    private final ObjectMapper mapper       = new ObjectMapper(jsonFactory);
+
+    private final LZ4Compressor       lz4Compressor;
+    private final LZ4SafeDecompressor lz4Decompressor;
+
+    /* bytes saved = plan.storage.json.bytes - plan.storage.encoded.bytes */
+    private final Counter jsonBytes;
+    private final Counter encodedBytes;
+
+    public PlanCodec(@Value("${plan.storage.format:JSON}") Format format,
+                     @Value("${plan.storage.compression:NONE}") Compression compression,
+                     MeterRegistry registry) {
+        this.format      = format;
+        this.compression = compression;
+
+        LZ4Factory lz4 = LZ4Factory.fastestInstance();
+        this.lz4Compressor   = lz4.fastCompressor();
+        this.lz4Decompressor = lz4.safeDecompressor();
+
+        this.jsonBytes = Counter.builder("plan.storage.json.bytes")
+                .description("Size of plans written to Redis as compact JSON")
+                .baseUnit("bytes")
+                .register(registry);
+        this.encodedBytes = Counter.builder("plan.storage.encoded.bytes")
+                .description("Size of plans as actually written to Redis")
+                .baseUnit("bytes")
+                .tag("format", format.name())
+                .tag("compression", compression.name())
+                .register(registry);
+    }
+
+    /**
+     * Encodes a plan with the configured format and compression.
+     * json must already be normalized (every caller has it in that form), so it
+     * is stored as-is for JSON and transcoded in a single pass otherwise.
+     */
+    public byte[] encode(String json) {
+        byte[] text = json.getBytes(StandardCharsets.UTF_8);
+        byte[] out;
+        if (format == Format.JSON && compression == Compression.NONE) {
+            out = text;                                   // same bytes as a legacy entry
+        } else {
+            byte[] payload = format == Format.JSON
+                    ? text
+                    : transcode(jsonFactory, text, 0, text.length, factoryFor(format));
+            if (compression == Compression.LZ4) payload = lz4(payload);
+
+            out = new byte[HEADER + payload.length];
+            out[0] = MAGIC;
+            out[1] = format.id;
+            out[2] = compression.id;
+            System.arraycopy(payload, 0, out, HEADER, payload.length);
+        }
+        jsonBytes.increment(text.length);
+        encodedBytes.increment(out.length);
+        return out;
+    }
+
+    /**
+     * Decodes any stored entry (legacy text or encoded) back to compact JSON,
+     * or null if stored is null.
+     */
+    public String decode(byte[] stored) {
+        if (stored == null) return null;
+        if (!isEncoded(stored)) {
+            return toJson(transcode(jsonFactory, stored, 0, stored.length, jsonFactory));
+        }
+
+        Format f      = Format.of(stored[1]);
+        Compression c = Compression.of(stored[2]);
+
+        byte[] payload;
+        int off, len;
+        if (c == Compression.LZ4) {
+            payload = unlz4(stored, HEADER);
+            off = 0;
+            len = payload.length;
+        } else {
+            payload = stored;
+            off = HEADER;
+            len = stored.length - HEADER;
+        }
+        return toJson(transcode(factoryFor(f), payload, off, len, jsonFactory));
+    }
+
+    /**
+     * Opens streaming parsers directly over a stored entry (legacy text or
+     * encoded), so callers can read parts of a plan without decoding all of it.
+     * Any number of parsers can be opened; an LZ4 entry is decompressed only once.
+     */
+    public ParserSource parserSource(byte[] stored) {
+        if (!isEncoded(stored)) return () -> jsonFactory.createParser(stored);
+
+        JsonFactory f = factoryFor(Format.of(stored[1]));
+        if (Compression.of(stored[2]) == Compression.LZ4) {
+            byte[] payload = unlz4(stored, HEADER);
+            return () -> f.createParser(payload);
+        }
+        return () -> f.createParser(stored, HEADER, stored.length - HEADER);
+    }
+
+    @FunctionalInterface
+    public interface ParserSource {
+        JsonParser open() throws IOException;
+    }
+
+    /**
+     * Writes a parsed plan in the compact form every read returns, so ETags
+     * computed from it match the ones computed after a round trip through Redis.
+     */
+    public String normalize(JsonNode plan) {
+        try {
+            return mapper.writeValueAsString(plan);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Configured encoding as "FORMAT:COMPRESSION", e.g. SMILE:LZ4.
+     */
+    public String storageId() {
+        return format.name() + ":" + compression.name();
+    }
+
+    /**
+     * True if the stored entry already uses the configured format and compression.
+     */
+    public boolean isCurrent(byte[] stored) {
+        if (!isEncoded(stored)) {
+            return format == Format.JSON && compression == Compression.NONE;
+        }
+        return stored[1] == format.id && stored[2] == compression.id;
+    }
+
+    /* ─────────────────── helpers ─────────────────── */
+
+    private static boolean isEncoded(byte[] stored) {
+        return stored.length >= HEADER && stored[0] == MAGIC;
+    }
+
+    private JsonFactory factoryFor(Format f) {
+        return switch (f) {
+            case JSON  -> jsonFactory;
+            case SMILE -> smileFactory;
+            case CBOR  -> cborFactory;
+        };
+    }
+
+    /** Streams one document from one Jackson format to another without building a tree. */
+    private static byte[] transcode(JsonFactory in, byte[] src, int off, int len, JsonFactory out) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(len);
+        try (JsonParser p = in.createParser(src, off, len);
+             JsonGenerator g = out.createGenerator(bos)) {
+            if (p.nextToken() == null) throw new IOException("Empty plan document");
+            g.copyCurrentStructure(p);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    private byte[] lz4(byte[] src) {
+        byte[] dst = new byte[4 + lz4Compressor.maxCompressedLength(src.length)];
+        ByteBuffer.wrap(dst).putInt(src.length);
+        int n = lz4Compressor.compress(src, 0, src.length, dst, 4, dst.length - 4);
+        byte[] out = new byte[4 + n];
+        System.arraycopy(dst, 0, out, 0, out.length);
+        return out;
+    }
+
+    /**
+     * The stored length is untrusted: it is checked against the compressed size
+     * before allocating, and the safe decompressor never reads past the entry.
+     */
+    private byte[] unlz4(byte[] src, int off) {
+        int compressedLength = src.length - off - 4;
+        if (compressedLength < 0) {
+            throw new IllegalStateException("Truncated LZ4 plan entry");
+        }
+        int originalLength = ByteBuffer.wrap(src, off, 4).getInt();
+        if (originalLength < 0 || originalLength > MAX_PLAN_BYTES
+                || (long) originalLength > (long) compressedLength * LZ4_MAX_RATIO) {
+            throw new IllegalStateException("Corrupt LZ4 plan entry: length " + originalLength);
+        }
+        byte[] dst = new byte[originalLength];
+        try {
+            int n = lz4Decompressor.decompress(src, off + 4, compressedLength, dst, 0, originalLength);
+            if (n != originalLength) {
+                throw new IllegalStateException("Corrupt LZ4 plan entry: " + n + " of " + originalLength + " bytes");
+            }
+        } catch (LZ4Exception e) {
+            throw new IllegalStateException("Corrupt LZ4 plan entry", e);
+        }
+        return dst;
+    }
+
+    private static String toJson(byte[] utf8) {
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,215 @@
+package com.bigdata.json.query.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.filter.FilteringParserDelegate;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming reads of part of a plan: walks the stored document token by token,
+ * skipping every subtree that is neither on the requested path nor in the
+ * requested field set, so the full plan is never materialized.
+ *
+ * Path segments are field names inside objects and "objectId" values inside
+ * arrays, e.g. [linkedPlanServices, 27283xvx9asdff-504, linkedService].
+ * Fields are dotted paths, e.g. objectId, planCostShares.copay.
+ *
+ * objectId usually comes after an element's nested fields, so array elements
+ * are skip-scanned for it; once the match is known the parser is reopened and
+ * moved straight to that element. Nothing is buffered on the way, at the cost
+ * of one extra (skip-only) pass per array segment.
+ */
+final class PlanProjector {
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final String OBJECT_ID = "objectId";
+
+    private PlanProjector() {}
+
+    /**
+     * Returns the value at path, reduced to fields (all fields if empty), as
+     * compact JSON, or null if the path doesn't exist. When no field matches,
+     * the result is an empty object or array, matching the selected value.
+     * Throws IllegalArgumentException if fields are given for a scalar value.
+     */
+    static String project(PlanCodec.ParserSource source, List<String> path, Set<String> fields) throws IOException {
+        JsonParser p = source.open();
+        try {
+            if (!path.isEmpty()) {
+                p.nextToken();
+                List<Object> steps = new ArrayList<>(path.size());    // field names / element indexes
+                for (String segment : path) {
+                    JsonToken t = p.currentToken();
+                    if (t == JsonToken.START_OBJECT) {
+                        if (!findField(p, segment)) return null;
+                        steps.add(segment);
+                    } else if (t == JsonToken.START_ARRAY) {
+                        int index = findIndex(p, segment);
+                        if (index < 0) return null;
+                        steps.add(index);
+                        // the scan went past the element's earlier fields: start over, skipping straight to it
+                        p.close();
+                        p = source.open();
+                        p.nextToken();
+                        replay(p, steps);
+                    } else {
+                        return null;
+                    }
+                }
+            }
+            return write(source, p, path.isEmpty() ? null : p.currentToken(), fields);
+        } finally {
+            p.close();
+        }
+    }
+
+    /**
+     * Writes the selected value. target is the token p is positioned on, or
+     * null if p is fresh and the whole plan is selected.
+     */
+    private static String write(PlanCodec.ParserSource source, JsonParser p, JsonToken target,
+                                Set<String> fields) throws IOException {
+        JsonParser src = p;
+        if (!fields.isEmpty()) {
+            JsonToken type = target != null ? target : firstToken(source);
+            if (type == null || !type.isStructStart()) {
+                throw new IllegalArgumentException("fields can only be applied to an object or array");
+            }
+            if (target != null) {
+                // the filter needs a parser it can start from the first token; only the sub-resource is buffered
+                TokenBuffer sub = new TokenBuffer(src);
+                sub.copyCurrentStructure(src);
+                src = sub.asParser();
+            }
+            src = new FilteringParserDelegate(src, FieldFilter.of(fields),
+                    TokenFilter.Inclusion.INCLUDE_ALL_AND_PATH, true);
+            if (src.nextToken() == null) {
+                return type == JsonToken.START_ARRAY ? "[]" : "{}";    // nothing matched the field set
+            }
+        } else if (src.currentToken() == null && src.nextToken() == null) {
+            return null;                                  // empty entry
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator g = JSON.createGenerator(out)) {
+            g.copyCurrentStructure(src);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Peeks at the first token of the stored plan with a throwaway parser. */
+    private static JsonToken firstToken(PlanCodec.ParserSource source) throws IOException {
+        try (JsonParser peek = source.open()) {
+            return peek.nextToken();
+        }
+    }
+
+    /** From the start of an object, moves to the value of field name. */
+    private static boolean findField(JsonParser p, String name) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if (field.equals(name)) return true;
+            p.skipChildren();
+        }
+        return false;
+    }
+
+    /** From the start of an array, returns the index of the element with objectId, or -1. */
+    private static int findIndex(JsonParser p, String objectId) throws IOException {
+        int index = 0;
+        for (JsonToken t = p.nextToken(); t != null && t != JsonToken.END_ARRAY; t = p.nextToken(), index++) {
+            if (t != JsonToken.START_OBJECT) {
+                p.skipChildren();
+            } else if (hasObjectId(p, objectId)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /** Skips through one object looking only at its own objectId; leaves p mid-object on a match. */
+    private static boolean hasObjectId(JsonParser p, String objectId) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if (OBJECT_ID.equals(field)) {
+                if (objectId.equals(p.getValueAsString())) return true;
+                p.skipChildren();                         // a non-scalar objectId must not leave p inside it
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    p.nextToken();
+                    p.skipChildren();
+                }
+                return false;
+            }
+            p.skipChildren();
+        }
+        return false;
+    }
+
+    /** Re-walks already resolved steps on a fresh parser positioned at the root. */
+    private static void replay(JsonParser p, List<Object> steps) throws IOException {
+        for (Object step : steps) {
+            if (step instanceof Integer index) {
+                for (int i = 0; i < index; i++) {
+                    p.nextToken();
+                    p.skipChildren();
+                }
+                p.nextToken();
+            } else if (!findField(p, (String) step)) {
+                throw new IllegalStateException("Inconsistent plan entry while reading path " + steps);
+            }
+        }
+    }
+
+    /* ───────── sparse fieldset as a Jackson TokenFilter ───────── */
+
+    private static final class FieldFilter extends TokenFilter {
+
+        private final Map<String, FieldFilter> children = new HashMap<>();
+        private boolean leaf;
+
+        static FieldFilter of(Set<String> fields) {
+            FieldFilter root = new FieldFilter();
+            for (String f : fields) {
+                FieldFilter node = root;
+                for (String name : f.split("\\.")) {
+                    node = node.children.computeIfAbsent(name, k -> new FieldFilter());
+                }
+                node.leaf = true;
+            }
+            return root;
+        }
+
+        @Override
+        public TokenFilter includeProperty(String name) {
+            FieldFilter child = children.get(name);
+            if (child == null) return null;
+            return child.leaf ? TokenFilter.INCLUDE_ALL : child;
+        }
+
+        /* arrays are transparent: the same fields apply to every element */
+        @Override
+        public TokenFilter includeElement(int index) {
+            return this;
+        }
+
+        /* a scalar where an object was expected doesn't match a nested field */
+        @Override
+        protected boolean _includeScalar() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.bigdata.json.query.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.networknt.schema.JsonSchema;
+import com.networknt.schema.JsonSchemaFactory;
+import com.networknt.schema.SpecVersion;
+import com.networknt.schema.ValidationMessage;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * plan-schema.json, precompiled at startup into one validator per schema path
+ * ("$", "$.planCostShares", "$.linkedPlanServices[]", ...).
+ *
+ * Each path has a deep validator (the full sub-schema) and a shallow one that
+ * checks only that level (type, required, additionalProperties) and accepts
+ * any children. A patch is validated by walking it alongside the merged
+ * document: shallow checks on every container the patch passes through, deep
+ * checks on values it replaces, nothing at all for subtrees it doesn't touch.
+ */
+@Component
+public class PlanSchemaValidator {
+
+    private static final String SCHEMA_RESOURCE = "/schemas/plan-schema.json";
+    private static final String ROOT = "$";
+
+    /*
+     * Keywords the per-path precompiler understands: "properties" and "items"
+     * are followed, everything else only constrains its own level. Anything
+     * else ($ref, definitions, allOf, oneOf, ...) would be silently skipped by
+     * the patch walk or unresolvable in a sub-schema, so it fails startup.
+     */
+    private static final Set<String> SUPPORTED_KEYWORDS = Set.of(
+            "$schema", "$id", "title", "description", "default", "examples",
+            "type", "properties", "required", "additionalProperties", "items",
+            "enum", "const", "pattern", "format", "minLength", "maxLength",
+            "minimum", "maximum", "exclusiveMinimum", "exclusiveMaximum", "multipleOf",
+            "minItems", "maxItems", "uniqueItems", "minProperties", "maxProperties");
+
+    private final JsonSchemaFactory factory = JsonSchemaFactory.getInstance(SpecVersion.VersionFlag.V201909);
+    private final Map<String, JsonSchema> deep    = new HashMap<>();
+    private final Map<String, JsonSchema> shallow = new HashMap<>();
+
+    public PlanSchemaValidator() throws IOException {
+        try (InputStream schemaStream = getClass().getResourceAsStream(SCHEMA_RESOURCE)) {
+            compile(ROOT, new ObjectMapper().readTree(schemaStream));
+        }
+    }
+
+    /** Precompiles the given schema instead of plan-schema.json. */
+    PlanSchemaValidator(JsonNode schema) {
+        compile(ROOT, schema);
+    }
+
+    /**
+     * Validates a whole plan document. Returns the error messages, empty if valid.
+     */
+    public List<String> validate(JsonNode plan) {
+        List<String> errors = new ArrayList<>();
+        check(deep.get(ROOT), plan, ROOT, errors);
+        return errors;
+    }
+
+    /**
+     * Validates the result of merging patch into a plan, looking only at the
+     * subtrees the patch touched. Returns the error messages, empty if valid.
+     */
+    public List<String> validatePatched(ObjectNode merged, ObjectNode patch) {
+        List<String> errors = new ArrayList<>();
+        walk(ROOT, ROOT, merged, patch, errors);
+        return errors;
+    }
+
+    /* ─────────────────── patch walk ─────────────────── */
+
+    private void walk(String schemaPath, String label, JsonNode merged, JsonNode patch, List<String> errors) {
+        if (merged == null) return;                       // removed by the patch: parent's "required" covers it
+
+        if (patch.isObject() && merged.isObject()) {
+            check(shallow.get(schemaPath), merged, label, errors);
+            Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> e = fields.next();
+                String childPath = schemaPath + "." + e.getKey();
+                if (!deep.containsKey(childPath)) continue;   // unknown field: parent's "additionalProperties" covers it
+                walk(childPath, label + "." + e.getKey(), merged.get(e.getKey()), e.getValue(), errors);
+            }
+        } else if (patch.isArray() && merged.isArray() && mergedById(patch)) {
+            check(shallow.get(schemaPath), merged, label, errors);
+            String itemPath = schemaPath + "[]";
+            if (!deep.containsKey(itemPath)) return;
+            for (JsonNode patchElem : patch) {
+                String id = patchElem.get("objectId").asText();
+                walk(itemPath, label + "[" + id + "]", findById(merged, id), patchElem, errors);
+            }
+        } else {
+            check(deep.get(schemaPath), merged, label, errors);
+        }
+    }
+
+    /* same rule PlanService.merge uses to merge arrays element-wise */
+    private static boolean mergedById(JsonNode patchArray) {
+        for (JsonNode elem : patchArray) {
+            if (!elem.isObject() || !elem.has("objectId")) return false;
+        }
+        return true;
+    }
+
+    private static JsonNode findById(JsonNode array, String id) {
+        for (JsonNode elem : array) {
+            if (elem.isObject() && id.equals(elem.path("objectId").asText(null))) return elem;
+        }
+        return null;
+    }
+
+    private static void check(JsonSchema schema, JsonNode node, String label, List<String> errors) {
+        for (ValidationMessage msg : schema.validate(node)) {
+            // messages are relative to the validated subtree; re-anchor them in the plan
+            String m = msg.getMessage();
+            errors.add(m.startsWith(ROOT) ? label + m.substring(ROOT.length()) : label + ": " + m);
+        }
+    }
+
+    /* ─────────────────── precompilation ─────────────────── */
+
+    private void compile(String path, JsonNode schemaNode) {
+        checkSupported(path, schemaNode);
+        JsonSchema full = factory.getSchema(schemaNode);
+        deep.put(path, full);
+
+        JsonNode props = schemaNode.path("properties");
+        JsonNode items = schemaNode.path("items");
+        if (!props.isObject() && !items.isObject()) {
+            shallow.put(path, full);                      // leaf: nothing below to skip
+            return;
+        }
+        shallow.put(path, factory.getSchema(shallowCopy(schemaNode)));
+
+        props.fields().forEachRemaining(e -> compile(path + "." + e.getKey(), e.getValue()));
+        if (items.isObject()) compile(path + "[]", items);
+    }
+
+    private static void checkSupported(String path, JsonNode schemaNode) {
+        if (!schemaNode.isObject()) {
+            throw new IllegalStateException(SCHEMA_RESOURCE + ": schema at " + path + " must be an object");
+        }
+        schemaNode.fieldNames().forEachRemaining(keyword -> {
+            if (!SUPPORTED_KEYWORDS.contains(keyword)) {
+                throw new IllegalStateException(SCHEMA_RESOURCE + ": keyword '" + keyword + "' at " + path
+                        + " is not supported by the incremental validator");
+            }
+        });
+        if (schemaNode.has("items") && !schemaNode.get("items").isObject()) {
+            throw new IllegalStateException(SCHEMA_RESOURCE + ": tuple 'items' at " + path
+                    + " is not supported by the incremental validator");
+        }
+        if (schemaNode.has("additionalProperties") && !schemaNode.get("additionalProperties").isBoolean()) {
+            throw new IllegalStateException(SCHEMA_RESOURCE + ": schema-valued 'additionalProperties' at " + path
+                    + " is not supported by the incremental validator");
+        }
+    }
+
+    /** Same schema with every child schema replaced by {} (accept anything). */
+    private static JsonNode shallowCopy(JsonNode schemaNode) {
+        ObjectNode copy = schemaNode.deepCopy();
+        copy.remove("$id");
+        JsonNode props = copy.path("properties");
+        if (props.isObject()) {
+            ObjectNode open = ((ObjectNode) props);
+            List<String> names = new ArrayList<>();
+            open.fieldNames().forEachRemaining(names::add);
+            for (String name : names) open.putObject(name);
+        }
+        if (copy.path("items").isObject()) copy.putObject("items");
+        return copy;
+    }
+}
@@ -12,46 +12,74 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.DigestUtils;
 
+import java.io.IOException;
 import java.util.*;
 
 @Service
 public class PlanService {
 
-    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisTemplate<String, byte[]> redisTemplate;
     private final AmqpTemplate amqp;
+    private final PlanCodec codec;
+    private final PlanSchemaValidator validator;
 
-    private HashOperations<String, String, String> hashOps;
+    private HashOperations<String, String, byte[]> hashOps;
     private final ObjectMapper mapper = new ObjectMapper();
 
     /** constructor used by Lombok; we init hashOps here */
-    public PlanService(RedisTemplate<String, String> redisTemplate,
-                       AmqpTemplate amqp) {
-        this.redisTemplate = redisTemplate;
+    public PlanService(RedisTemplate<String, byte[]> planBinaryRedisTemplate,
+                       AmqpTemplate amqp,
+                       PlanCodec codec,
+                       PlanSchemaValidator validator) {
+        this.redisTemplate = planBinaryRedisTemplate;
         this.amqp          = amqp;
-        this.hashOps       = redisTemplate.opsForHash();
+        this.codec         = codec;
+        this.validator     = validator;
+        this.hashOps       = planBinaryRedisTemplate.opsForHash();
     }
 
     /* ─────────────────── helpers ─────────────────── */
 
-    private static final String DATA_PREFIX = "plan:data:";
+    static final String DATA_PREFIX = "plan:data:";
+    static final String JSON_FIELD  = "json";
 
     private String dataKey(String id) {
         return DATA_PREFIX + id;
     }
 
     /**
-     * Saves the JSON string to Redis in a single hash
+     * Saves the plan to Redis in a single hash, encoded by PlanCodec
      */
     public void savePlan(String objectId, String json) {
-        hashOps.put(dataKey(objectId), "json", json);
+        hashOps.put(dataKey(objectId), JSON_FIELD, codec.encode(json));
         publish(PlanIndexMessage.Operation.CREATE, objectId, json);
     }
 
     /**
-     * Retrieves the JSON string by objectId, or null if not found.
+     * Retrieves the plan as compact JSON by objectId, or null if not found.
      */
     public String getPlan(String objectId) {
-        return hashOps.get(dataKey(objectId), "json");
+        return codec.decode(hashOps.get(dataKey(objectId), JSON_FIELD));
+    }
+
+    /**
+     * Retrieves part of a plan without materializing the whole document:
+     * the value at path (field names, or objectIds inside arrays), reduced to
+     * the given fields (dotted paths; all fields if empty).
+     * Returns compact JSON, or null if the plan or the path doesn't exist.
+     */
+    public String getPlanPart(String objectId, List<String> path, Set<String> fields) throws IOException {
+        byte[] stored = hashOps.get(dataKey(objectId), JSON_FIELD);
+        if (stored == null) return null;
+        return PlanProjector.project(codec.parserSource(stored), path, fields);
+    }
+
+    /**
+     * Writes an already parsed plan in the same compact form getPlan returns,
+     * so ETags of incoming and stored plans are comparable.
+     */
+    public String normalize(JsonNode plan) {
+        return codec.normalize(plan);
     }
 
     /**
@@ -70,7 +98,7 @@ public class PlanService {
                 .orElse(Collections.emptySet());
         List<String> out = new ArrayList<>(keys.size());
         for (String k : keys) {
-            String j = hashOps.get(k, "json");
+            String j = codec.decode(hashOps.get(k, JSON_FIELD));
             if (j != null) out.add(j);
         }
         return out;
@@ -80,6 +108,8 @@ public class PlanService {
      * Applies a patch (merge) update to the stored plan. Returns the new ETag.
      * If in the patch, an element in the "linkedPlanServices" array has an objectId
      * that does not match any existing element, that new object is added to the array.
+     * The merged plan is validated (only the subtrees the patch touched) before
+     * anything is persisted; throws PlanValidationException if it is invalid.
      * Returns the updated JSON.
      */
     public String patchPlan(String id, String patchPayload) throws Exception {
@@ -94,7 +124,10 @@ public class PlanService {
 
         merge((ObjectNode) target, (ObjectNode) patch);
 
-        String merged = mapper.writeValueAsString(target);
+        List<String> errors = validator.validatePatched((ObjectNode) target, (ObjectNode) patch);
+        if (!errors.isEmpty()) throw new PlanValidationException(errors);
+
+        String merged = codec.normalize(target);
         savePlan(id, merged);                              // also publishes CREATE
         publish(PlanIndexMessage.Operation.PATCH, id, merged);
         return merged;
@@ -106,7 +139,7 @@ public class PlanService {
      * - If a patch element's "objectId" matches an existing element, merge them.
      * - If no matching element is found, append the patch element.
      */
-    private void merge(ObjectNode targetNode, ObjectNode patchNode) {
+    static void merge(ObjectNode targetNode, ObjectNode patchNode) {
         Iterator<Map.Entry<String, JsonNode>> fields = patchNode.fields();
         while (fields.hasNext()) {
             Map.Entry<String, JsonNode> entry = fields.next();
@@ -0,0 +1,121 @@
+package com.bigdata.json.query.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Opt-in background job that re-encodes stored plans into the configured
+ * storage format (legacy JSON text included). Runs after startup while the API
+ * keeps serving; each entry is swapped with a compare-and-set so a concurrent
+ * write is never overwritten by a stale re-encoding.
+ *
+ * A completed run leaves a marker per format/compression, so later restarts
+ * don't re-scan the keyspace. The migration is one-way for builds that can't
+ * read the new encoding.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "plan.storage.migration.enabled", havingValue = "true", matchIfMissing = false)
+public class PlanStorageMigrator {
+
+    /* HSET only if the field still holds the bytes we re-encoded */
+    private static final RedisScript<Long> COMPARE_AND_SET = new DefaultRedisScript<>(
+            "if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] then " +
+            "  redis.call('HSET', KEYS[1], ARGV[1], ARGV[3]) return 1 " +
+            "end return 0",
+            Long.class);
+
+    private static final byte[] JSON_FIELD = PlanService.JSON_FIELD.getBytes(StandardCharsets.UTF_8);
+
+    static final String MARKER_PREFIX = "plan:meta:storage-migrated:";
+
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final HashOperations<String, String, byte[]> hashOps;
+    private final PlanCodec codec;
+    private final Counter migrated;
+    private final Counter savedBytes;
+
+    public PlanStorageMigrator(RedisTemplate<String, byte[]> planBinaryRedisTemplate,
+                               PlanCodec codec,
+                               MeterRegistry registry) {
+        this.redisTemplate = planBinaryRedisTemplate;
+        this.hashOps       = planBinaryRedisTemplate.opsForHash();
+        this.codec         = codec;
+        this.migrated = Counter.builder("plan.storage.migrated")
+                .description("Plans re-encoded into the configured storage format")
+                .register(registry);
+        this.savedBytes = Counter.builder("plan.storage.migration.saved.bytes")
+                .description("Redis bytes freed by re-encoding existing plans")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread t = new Thread(this::migrateAll, "plan-storage-migrator");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void migrateAll() {
+        String marker = MARKER_PREFIX + codec.storageId();
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(marker))) {
+            log.info("Plans already migrated to {}, skipping", codec.storageId());
+            return;
+        }
+
+        ScanOptions scan = ScanOptions.scanOptions()
+                .match(PlanService.DATA_PREFIX + "*")
+                .count(500)
+                .build();
+        long done = 0, failed = 0;
+        try (Cursor<String> keys = redisTemplate.scan(scan)) {
+            while (keys.hasNext()) {
+                String key = keys.next();
+                try {
+                    if (migrate(key)) done++;
+                } catch (RuntimeException e) {
+                    failed++;
+                    log.warn("Could not re-encode {}: {}", key, e.getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Plan storage migration aborted", e);
+            return;
+        }
+        log.info("Plan storage migration finished, {} entries re-encoded, {} failed", done, failed);
+
+        // new writes already use the configured encoding, so a clean run never needs repeating
+        if (failed == 0) {
+            redisTemplate.opsForValue().set(marker, Instant.now().toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    boolean migrate(String key) {
+        byte[] stored = hashOps.get(key, PlanService.JSON_FIELD);
+        if (stored == null || codec.isCurrent(stored)) return false;
+
+        byte[] encoded = codec.encode(codec.decode(stored));
+        Long swapped = redisTemplate.execute(COMPARE_AND_SET, List.of(key), JSON_FIELD, stored, encoded);
+        if (swapped == null || swapped == 0) return false;   // plan changed meanwhile; its writer already re-encoded it
+
+        migrated.increment();
+        savedBytes.increment(Math.max(0, stored.length - encoded.length));
+        return true;
+    }
+}
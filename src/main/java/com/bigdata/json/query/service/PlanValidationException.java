@@ -0,0 +1,20 @@
+package com.bigdata.json.query.service;
+
+import java.util.List;
+
+/**
+ * Thrown when a patched plan fails schema validation; nothing has been persisted.
+ */
+public class PlanValidationException extends Exception {
+
+    private final List<String> errors;
+
+    public PlanValidationException(List<String> errors) {
+        super("JSON Schema validation failed: " + errors);
+        this.errors = errors;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,125 @@
+package com.bigdata.json.query.service;
+
+import com.bigdata.json.query.service.PlanCodec.Compression;
+import com.bigdata.json.query.service.PlanCodec.Format;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanCodecTest {
+
+	static final String PLAN = "{\"planCostShares\":{\"deductible\":2000,\"_org\":\"example.com\",\"copay\":23,"
+			+ "\"objectId\":\"1234vxc2324sdf-501\",\"objectType\":\"membercostshare\"},"
+			+ "\"linkedPlanServices\":[{\"linkedService\":{\"_org\":\"example.com\",\"objectId\":\"1234520xvc30asdf-502\","
+			+ "\"objectType\":\"service\",\"name\":\"Yearly physical\"},"
+			+ "\"planserviceCostShares\":{\"deductible\":10,\"_org\":\"example.com\",\"copay\":0,"
+			+ "\"objectId\":\"1234512xvc1314asdfs-503\",\"objectType\":\"membercostshare\"},"
+			+ "\"_org\":\"example.com\",\"objectId\":\"27283xvx9asdff-504\",\"objectType\":\"planservice\"}],"
+			+ "\"_org\":\"example.com\",\"objectId\":\"12xvxc345ssdsds-508\",\"objectType\":\"plan\","
+			+ "\"planType\":\"inNetwork\",\"creationDate\":\"12-12-2017\"}";
+
+	static final String NUMBERS = "{\"d\":1.50,\"e\":2.5e3,\"f\":-0.1,\"i\":7,"
+			+ "\"long\":9007199254740993,"
+			+ "\"big\":123456789012345678901234567890,"
+			+ "\"negBig\":-12345678901234567890}";
+
+	static PlanCodec codec(Format format, Compression compression) {
+		return new PlanCodec(format, compression, new SimpleMeterRegistry());
+	}
+
+	static Stream<Arguments> encodings() {
+		List<Arguments> all = new ArrayList<>();
+		for (Format f : Format.values())
+			for (Compression c : Compression.values())
+				all.add(Arguments.of(f, c));
+		return all.stream();
+	}
+
+	@ParameterizedTest
+	@MethodSource("encodings")
+	void roundTripsEveryEncoding(Format format, Compression compression) {
+		PlanCodec codec = codec(format, compression);
+
+		byte[] stored = codec.encode(PLAN);
+
+		assertEquals(PLAN, codec.decode(stored));
+	}
+
+	@ParameterizedTest
+	@MethodSource("encodings")
+	void decodesLegacyJsonText(Format format, Compression compression) {
+		PlanCodec codec = codec(format, compression);
+		String pretty = "{\n  \"a\" : 1,\n  \"b\" : [ 1, 2 ],\n  \"c\" : { \"d\" : \"x\" }\n}\n";
+
+		assertEquals(PLAN, codec.decode(PLAN.getBytes(StandardCharsets.UTF_8)));
+		assertEquals("{\"a\":1,\"b\":[1,2],\"c\":{\"d\":\"x\"}}",
+				codec.decode(pretty.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@ParameterizedTest
+	@MethodSource("encodings")
+	void isCurrentOnlyForTheConfiguredEncoding(Format format, Compression compression) {
+		PlanCodec reader = codec(format, compression);
+
+		for (Format f : Format.values()) {
+			for (Compression c : Compression.values()) {
+				byte[] stored = codec(f, c).encode(PLAN);
+				assertEquals(f == format && c == compression, reader.isCurrent(stored),
+						"written as " + f + "/" + c + ", configured " + format + "/" + compression);
+			}
+		}
+		assertEquals(format == Format.JSON && compression == Compression.NONE,
+				reader.isCurrent(PLAN.getBytes(StandardCharsets.UTF_8)), "legacy entry");
+	}
+
+	@ParameterizedTest
+	@MethodSource("encodings")
+	void normalizeMatchesStoredRoundTripForNumbers(Format format, Compression compression) throws Exception {
+		PlanCodec codec = codec(format, compression);
+
+		String normalized = codec.normalize(new ObjectMapper().readTree(NUMBERS));
+
+		assertEquals(normalized, codec.decode(codec.encode(NUMBERS)));
+		assertEquals(normalized, codec.decode(codec.encode(normalized)));
+	}
+
+	@Test
+	void parserSourceReadsEveryEncoding() throws Exception {
+		ObjectMapper mapper = new ObjectMapper();
+		for (Format f : Format.values()) {
+			for (Compression c : Compression.values()) {
+				PlanCodec codec = codec(f, c);
+				assertEquals(mapper.readTree(PLAN), mapper.readTree(codec.parserSource(codec.encode(PLAN)).open()));
+			}
+		}
+	}
+
+	@Test
+	void rejectsCorruptLz4Length() {
+		PlanCodec codec = codec(Format.SMILE, Compression.LZ4);
+		byte[] stored = codec.encode(PLAN);
+
+		byte[] huge = stored.clone();
+		ByteBuffer.wrap(huge, 3, 4).putInt(Integer.MAX_VALUE);
+		assertThrows(IllegalStateException.class, () -> codec.decode(huge));
+
+		byte[] negative = stored.clone();
+		ByteBuffer.wrap(negative, 3, 4).putInt(-1);
+		assertThrows(IllegalStateException.class, () -> codec.decode(negative));
+
+		byte[] truncated = Arrays.copyOf(stored, stored.length / 2);
+		assertThrows(IllegalStateException.class, () -> codec.decode(truncated));
+	}
+}
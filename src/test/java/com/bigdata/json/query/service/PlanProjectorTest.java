@@ -0,0 +1,157 @@
+package com.bigdata.json.query.service;
+
+import com.bigdata.json.query.service.PlanCodec.Compression;
+import com.bigdata.json.query.service.PlanCodec.Format;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanProjectorTest {
+
+	/* README sample plan plus a second linkedPlanService; objectId comes after the nested objects */
+	static final String PLAN = "{\"planCostShares\":{\"deductible\":2000,\"_org\":\"example.com\",\"copay\":23,"
+			+ "\"objectId\":\"1234vxc2324sdf-501\",\"objectType\":\"membercostshare\"},"
+			+ "\"linkedPlanServices\":["
+			+ "{\"linkedService\":{\"_org\":\"example.com\",\"objectId\":\"1234520xvc30asdf-502\","
+			+ "\"objectType\":\"service\",\"name\":\"Yearly physical\"},"
+			+ "\"planserviceCostShares\":{\"deductible\":10,\"_org\":\"example.com\",\"copay\":0,"
+			+ "\"objectId\":\"1234512xvc1314asdfs-503\",\"objectType\":\"membercostshare\"},"
+			+ "\"_org\":\"example.com\",\"objectId\":\"27283xvx9asdff-504\",\"objectType\":\"planservice\"},"
+			+ "{\"linkedService\":{\"_org\":\"example.com\",\"objectId\":\"ls-2\","
+			+ "\"objectType\":\"service\",\"name\":\"Dental\"},"
+			+ "\"planserviceCostShares\":{\"deductible\":5,\"_org\":\"example.com\",\"copay\":1,"
+			+ "\"objectId\":\"pscs-2\",\"objectType\":\"membercostshare\"},"
+			+ "\"_org\":\"example.com\",\"objectId\":\"lps-2\",\"objectType\":\"planservice\"}],"
+			+ "\"_org\":\"example.com\",\"objectId\":\"12xvxc345ssdsds-508\",\"objectType\":\"plan\","
+			+ "\"planType\":\"inNetwork\",\"creationDate\":\"12-12-2017\"}";
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private static PlanCodec.ParserSource source(Format format, Compression compression) {
+		return source(format, compression, PLAN);
+	}
+
+	private static PlanCodec.ParserSource source(Format format, Compression compression, String json) {
+		PlanCodec codec = new PlanCodec(format, compression, new SimpleMeterRegistry());
+		return codec.parserSource(codec.encode(json));
+	}
+
+	@ParameterizedTest
+	@MethodSource("com.bigdata.json.query.service.PlanCodecTest#encodings")
+	void findsArrayElementByObjectIdAfterNestedFields(Format format, Compression compression) throws Exception {
+		PlanCodec.ParserSource source = source(format, compression);
+		JsonNode plan = mapper.readTree(PLAN);
+
+		String second = PlanProjector.project(source, List.of("linkedPlanServices", "lps-2"), Set.of());
+		String first  = PlanProjector.project(source, List.of("linkedPlanServices", "27283xvx9asdff-504"), Set.of());
+		String name   = PlanProjector.project(source, List.of("linkedPlanServices", "lps-2", "linkedService", "name"), Set.of());
+
+		assertEquals(plan.get("linkedPlanServices").get(1), mapper.readTree(second));
+		assertEquals(plan.get("linkedPlanServices").get(0), mapper.readTree(first));
+		assertEquals("\"Dental\"", name);
+	}
+
+	@ParameterizedTest
+	@MethodSource("com.bigdata.json.query.service.PlanCodecTest#encodings")
+	void skipsNonScalarObjectIdInEarlierElement(Format format, Compression compression) throws Exception {
+		String json = "{\"items\":["
+				+ "{\"objectId\":{\"objectId\":\"b\",\"nested\":[1,{\"objectId\":\"b\"}]},\"x\":{\"objectId\":\"b\"}},"
+				+ "{\"objectId\":[\"b\"],\"y\":2},"
+				+ "{\"name\":\"match\",\"objectId\":\"b\"},"
+				+ "{\"name\":\"later\",\"objectId\":\"c\"}]}";
+		PlanCodec.ParserSource source = source(format, compression, json);
+
+		assertEquals("{\"name\":\"match\",\"objectId\":\"b\"}",
+				PlanProjector.project(source, List.of("items", "b"), Set.of()));
+		assertEquals("\"later\"",
+				PlanProjector.project(source, List.of("items", "c", "name"), Set.of()));
+	}
+
+	@ParameterizedTest
+	@MethodSource("com.bigdata.json.query.service.PlanCodecTest#encodings")
+	void missingPathSegmentIsNull(Format format, Compression compression) throws Exception {
+		PlanCodec.ParserSource source = source(format, compression);
+
+		assertNull(PlanProjector.project(source, List.of("linkedPlanServices", "no-such-id"), Set.of()));
+		assertNull(PlanProjector.project(source, List.of("planCostShares", "noSuchField"), Set.of()));
+		assertNull(PlanProjector.project(source, List.of("noSuchField"), Set.of()));
+		assertNull(PlanProjector.project(source, List.of("planType", "deeper"), Set.of()));
+	}
+
+	@ParameterizedTest
+	@MethodSource("com.bigdata.json.query.service.PlanCodecTest#encodings")
+	void fieldsOnRoot(Format format, Compression compression) throws Exception {
+		String out = PlanProjector.project(source(format, compression), List.of(),
+				Set.of("objectId", "planCostShares.copay"));
+
+		assertEquals("{\"planCostShares\":{\"copay\":23},\"objectId\":\"12xvxc345ssdsds-508\"}", out);
+	}
+
+	@ParameterizedTest
+	@MethodSource("com.bigdata.json.query.service.PlanCodecTest#encodings")
+	void fieldsOnSubResource(Format format, Compression compression) throws Exception {
+		String out = PlanProjector.project(source(format, compression), List.of("planCostShares"),
+				Set.of("copay", "deductible"));
+
+		assertEquals("{\"deductible\":2000,\"copay\":23}", out);
+	}
+
+	@ParameterizedTest
+	@MethodSource("com.bigdata.json.query.service.PlanCodecTest#encodings")
+	void fieldsOnArraySubResource(Format format, Compression compression) throws Exception {
+		String out = PlanProjector.project(source(format, compression), List.of("linkedPlanServices"),
+				Set.of("objectId", "linkedService.name"));
+
+		assertEquals("[{\"linkedService\":{\"name\":\"Yearly physical\"},\"objectId\":\"27283xvx9asdff-504\"},"
+				+ "{\"linkedService\":{\"name\":\"Dental\"},\"objectId\":\"lps-2\"}]", out);
+	}
+
+	@ParameterizedTest
+	@MethodSource("com.bigdata.json.query.service.PlanCodecTest#encodings")
+	void fieldsMatchingNothingGiveEmptyObject(Format format, Compression compression) throws Exception {
+		String out = PlanProjector.project(source(format, compression), List.of(), Set.of("noSuchField"));
+
+		assertEquals("{}", out);
+	}
+
+	@ParameterizedTest
+	@MethodSource("com.bigdata.json.query.service.PlanCodecTest#encodings")
+	void fieldsMatchingNothingOnArrayGiveEmptyArray(Format format, Compression compression) throws Exception {
+		String out = PlanProjector.project(source(format, compression), List.of("linkedPlanServices"),
+				Set.of("noSuchField"));
+
+		assertEquals("[]", out);
+	}
+
+	@ParameterizedTest
+	@MethodSource("com.bigdata.json.query.service.PlanCodecTest#encodings")
+	void fieldsOnScalarAreRejected(Format format, Compression compression) {
+		PlanCodec.ParserSource source = source(format, compression);
+
+		assertThrows(IllegalArgumentException.class, () -> PlanProjector.project(source,
+				List.of("linkedPlanServices", "lps-2", "linkedService", "name"), Set.of("x")));
+	}
+
+	@ParameterizedTest
+	@MethodSource("com.bigdata.json.query.service.PlanCodecTest#encodings")
+	void wholePlanHasSameEtagAsPlainGet(Format format, Compression compression) throws Exception {
+		PlanCodec codec = new PlanCodec(format, compression, new SimpleMeterRegistry());
+		byte[] stored = codec.encode(PLAN);
+
+		String projected = PlanProjector.project(codec.parserSource(stored), List.of(), Set.of());
+		String plain     = codec.decode(stored);             // what GET /api/plans/{objectId} returns
+
+		assertEquals(plain, projected);
+		assertEquals(DigestUtils.md5DigestAsHex(plain.getBytes(StandardCharsets.UTF_8)),
+				DigestUtils.md5DigestAsHex(projected.getBytes(StandardCharsets.UTF_8)));
+	}
+}
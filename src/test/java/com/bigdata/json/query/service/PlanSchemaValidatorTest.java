@@ -0,0 +1,85 @@
+package com.bigdata.json.query.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanSchemaValidatorTest {
+
+	private static final String NEW_LPS = "{\"linkedService\":{\"_org\":\"example.com\",\"objectId\":\"ls-2\","
+			+ "\"objectType\":\"service\",\"name\":\"Dental\"},"
+			+ "\"planserviceCostShares\":{\"deductible\":5,\"_org\":\"example.com\",\"copay\":1,"
+			+ "\"objectId\":\"pscs-2\",\"objectType\":\"membercostshare\"},"
+			+ "\"_org\":\"example.com\",\"objectId\":\"lps-2\",\"objectType\":\"planservice\"}";
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final PlanSchemaValidator validator;
+
+	PlanSchemaValidatorTest() throws Exception {
+		validator = new PlanSchemaValidator();
+	}
+
+	/*
+	 * validatePatched must agree with validating the whole merged plan.
+	 * Only validity is compared: messages inside arrays are anchored by objectId
+	 * ("[27283xvx9asdff-504]") rather than by index.
+	 */
+	@ParameterizedTest(name = "{0}")
+	@CsvSource(delimiter = '|', textBlock = """
+			null removes required root field       | {"planType":null}                                                          | false
+			null removes required nested field     | {"planCostShares":{"copay":null}}                                          | false
+			null removes optional field            | {"creationDate":null}                                                      | true
+			unknown property at root               | {"foo":"bar"}                                                              | false
+			unknown property in array element      | {"linkedPlanServices":[{"objectId":"27283xvx9asdff-504","foo":1}]}         | false
+			scalar where object expected           | {"planCostShares":"oops"}                                                  | false
+			scalar where object expected in element| {"linkedPlanServices":[{"objectId":"27283xvx9asdff-504","linkedService":5}]} | false
+			wrong scalar type in nested object     | {"planCostShares":{"copay":"free"}}                                        | false
+			pattern violation                      | {"creationDate":"2017/12/12"}                                              | false
+			new element missing required fields    | {"linkedPlanServices":[{"objectId":"lps-2","objectType":"planservice"}]}   | false
+			array without objectIds replaces array | {"linkedPlanServices":[{"objectType":"planservice"}]}                      | false
+			empty array patch keeps array          | {"linkedPlanServices":[]}                                                  | true
+			valid nested change                    | {"planCostShares":{"copay":50}}                                            | true
+			valid no-op patch                      | {"planType":"inNetwork"}                                                   | true
+			empty patch                            | {}                                                                         | true
+			""")
+	void patchedValidationAgreesWithFullValidation(String name, String patchJson, boolean valid) throws Exception {
+		assertAgrees(patchJson, valid);
+	}
+
+	@Test
+	void newArrayElementAppendedByObjectId() throws Exception {
+		assertAgrees("{\"linkedPlanServices\":[" + NEW_LPS + "]}", true);
+		assertAgrees("{\"linkedPlanServices\":[" + NEW_LPS.replace("\"copay\":1", "\"copay\":\"one\"") + "]}", false);
+	}
+
+	@Test
+	void failsFastOnUnsupportedSchemaKeywords() throws Exception {
+		for (String schema : List.of(
+				"{\"type\":\"object\",\"properties\":{\"a\":{\"$ref\":\"#/definitions/a\"}},\"definitions\":{\"a\":{}}}",
+				"{\"type\":\"object\",\"properties\":{\"a\":{\"allOf\":[{\"type\":\"string\"}]}}}",
+				"{\"type\":\"object\",\"properties\":{\"a\":{\"oneOf\":[{\"type\":\"string\"}]}}}",
+				"{\"type\":\"array\",\"items\":[{\"type\":\"string\"}]}",
+				"{\"type\":\"object\",\"additionalProperties\":{\"type\":\"string\"}}")) {
+			assertThrows(IllegalStateException.class,
+					() -> new PlanSchemaValidator(mapper.readTree(schema)), schema);
+		}
+	}
+
+	private void assertAgrees(String patchJson, boolean valid) throws Exception {
+		ObjectNode merged = (ObjectNode) mapper.readTree(PlanProjectorTest.PLAN);
+		ObjectNode patch  = (ObjectNode) mapper.readTree(patchJson);
+		PlanService.merge(merged, patch);
+
+		List<String> full    = validator.validate(merged);
+		List<String> patched = validator.validatePatched(merged, patch);
+
+		assertEquals(valid, full.isEmpty(), "full validation: " + full);
+		assertEquals(full.isEmpty(), patched.isEmpty(), "full " + full + " vs patched " + patched);
+	}
+}
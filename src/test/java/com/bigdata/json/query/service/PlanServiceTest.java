@@ -0,0 +1,56 @@
+package com.bigdata.json.query.service;
+
+import com.bigdata.json.query.service.PlanCodec.Compression;
+import com.bigdata.json.query.service.PlanCodec.Format;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PlanServiceTest {
+
+	private static final String PLAN_ID = "12xvxc345ssdsds-508";
+
+	private final PlanCodec codec = new PlanCodec(Format.SMILE, Compression.LZ4, new SimpleMeterRegistry());
+
+	@SuppressWarnings("unchecked")
+	private final RedisTemplate<String, byte[]> template = mock(RedisTemplate.class);
+	@SuppressWarnings("unchecked")
+	private final HashOperations<String, String, byte[]> hashOps = mock(HashOperations.class);
+	private final AmqpTemplate amqp = mock(AmqpTemplate.class);
+
+	private PlanService service;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		when(template.<String, byte[]>opsForHash()).thenReturn(hashOps);
+		when(hashOps.get(PlanService.DATA_PREFIX + PLAN_ID, PlanService.JSON_FIELD))
+				.thenReturn(codec.encode(PlanProjectorTest.PLAN));
+		service = new PlanService(template, amqp, codec, new PlanSchemaValidator());
+	}
+
+	@Test
+	void invalidPatchIsRejectedBeforeAnythingIsPersisted() {
+		PlanValidationException ex = assertThrows(PlanValidationException.class,
+				() -> service.patchPlan(PLAN_ID, "{\"planCostShares\":{\"copay\":\"free\"}}"));
+
+		assertFalse(ex.getErrors().isEmpty());
+		verify(hashOps, never()).put(any(), any(), any());
+		verifyNoInteractions(amqp);
+	}
+
+	@Test
+	void validPatchIsSavedAndPublished() throws Exception {
+		String merged = service.patchPlan(PLAN_ID, "{\"planCostShares\":{\"copay\":50}}");
+
+		assertTrue(merged.contains("\"copay\":50"));
+		verify(hashOps).put(eq(PlanService.DATA_PREFIX + PLAN_ID), eq(PlanService.JSON_FIELD), any());
+		verify(amqp, times(2)).convertAndSend(anyString(), anyString(), any(Object.class));
+	}
+}
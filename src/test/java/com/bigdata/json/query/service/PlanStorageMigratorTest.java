@@ -0,0 +1,93 @@
+package com.bigdata.json.query.service;
+
+import com.bigdata.json.query.service.PlanCodec.Compression;
+import com.bigdata.json.query.service.PlanCodec.Format;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class PlanStorageMigratorTest {
+
+	private static final String KEY = PlanService.DATA_PREFIX + "p1";
+	private static final byte[] LEGACY = "{\"objectId\":\"p1\"}".getBytes(StandardCharsets.UTF_8);
+
+	/* stands in for the "json" field of each plan hash in Redis */
+	private final Map<String, byte[]> redis = new HashMap<>();
+
+	private final PlanCodec codec = new PlanCodec(Format.SMILE, Compression.LZ4, new SimpleMeterRegistry());
+
+	@SuppressWarnings("unchecked")
+	private final RedisTemplate<String, byte[]> template = mock(RedisTemplate.class);
+	@SuppressWarnings("unchecked")
+	private final HashOperations<String, String, byte[]> hashOps = mock(HashOperations.class);
+
+	private PlanStorageMigrator migrator;
+
+	@BeforeEach
+	void setUp() {
+		when(template.<String, byte[]>opsForHash()).thenReturn(hashOps);
+		// same semantics as the Lua compare-and-set script
+		when(template.execute(ArgumentMatchers.<RedisScript<Long>>any(), anyList(), any(), any(), any()))
+				.thenAnswer(inv -> {
+					List<String> keys = inv.getArgument(1);
+					byte[] expected = inv.getArgument(3);
+					byte[] replacement = inv.getArgument(4);
+					if (!Arrays.equals(redis.get(keys.get(0)), expected)) return 0L;
+					redis.put(keys.get(0), replacement);
+					return 1L;
+				});
+		migrator = new PlanStorageMigrator(template, codec, new SimpleMeterRegistry());
+	}
+
+	@Test
+	void reencodesUnchangedEntry() {
+		redis.put(KEY, LEGACY);
+		when(hashOps.get(KEY, PlanService.JSON_FIELD)).thenAnswer(inv -> redis.get(KEY));
+
+		assertTrue(migrator.migrate(KEY));
+
+		assertTrue(codec.isCurrent(redis.get(KEY)));
+		assertEquals(codec.decode(LEGACY), codec.decode(redis.get(KEY)));
+	}
+
+	@Test
+	void keepsWriteThatLandsBetweenReadAndSwap() {
+		byte[] concurrent = codec.encode("{\"objectId\":\"p1\",\"planType\":\"inNetwork\"}");
+		redis.put(KEY, LEGACY);
+		when(hashOps.get(KEY, PlanService.JSON_FIELD)).thenAnswer(inv -> {
+			byte[] read = redis.get(KEY);
+			redis.put(KEY, concurrent);          // a PATCH saves right after our HGET
+			return read;
+		});
+
+		assertFalse(migrator.migrate(KEY));
+
+		assertArrayEquals(concurrent, redis.get(KEY));
+		verify(hashOps, never()).put(any(), any(), any());
+	}
+
+	@Test
+	void skipsEntryAlreadyInCurrentEncoding() {
+		redis.put(KEY, codec.encode("{\"objectId\":\"p1\"}"));
+		when(hashOps.get(KEY, PlanService.JSON_FIELD)).thenAnswer(inv -> redis.get(KEY));
+
+		assertFalse(migrator.migrate(KEY));
+
+		verify(template, never()).execute(ArgumentMatchers.<RedisScript<Long>>any(), anyList(), any(), any(), any());
+	}
+}